@@ -0,0 +1,32 @@
+package com.createarttechnology.logger;
+
+/**
+ * 日志输出目的地，日志在Logger中格式化一次后分发给各个Appender
+ * 目前只有内置的console和syslog，通过logger.properties.appenders配置，所有Logger共用同一组
+ * 文件输出不经过Appender，仍由LogWorkThread在Logger.doWriteLog中写入
+ */
+interface Appender {
+
+    /**
+     * 非阻塞入队，不允许在调用线程中做IO
+     */
+    void append(String name, Level level, String logString);
+
+    /**
+     * 等待已入队的日志输出完成，最多等到deadline
+     * @return 仍未输出的日志条数
+     */
+    int flush(long deadline);
+
+    String getName();
+
+    /**
+     * 队列满时丢弃和输出失败的日志总数
+     */
+    long getDroppedCount();
+
+    /**
+     * 停止输出并释放资源，最多等到deadline
+     */
+    void close(long deadline);
+}
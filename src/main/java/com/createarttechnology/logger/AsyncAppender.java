@@ -0,0 +1,213 @@
+package com.createarttechnology.logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步Appender，每个实例有独立的队列和输出线程，慢的目的地不会阻塞文件日志
+ */
+abstract class AsyncAppender implements Appender {
+
+    /**
+     * 独立缓冲队列
+     */
+    private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<Event>();
+
+    /**
+     * ConcurrentLinkedQueue.size()需要遍历，单独计数，包括正在输出的一批
+     */
+    private final AtomicInteger queueCount = new AtomicInteger();
+
+    /**
+     * 最长退避时间，毫秒
+     */
+    private static final int MAX_BACKOFF = 5000;
+
+    /**
+     * 队列满时丢弃和输出失败的日志数目
+     */
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final String appenderName;
+
+    private final int capacity;
+
+    private final int batchSize;
+
+    private final int interval;
+
+    private final Thread workThread;
+
+    private volatile boolean running = true;
+
+    AsyncAppender(String appenderName, int capacity, int batchSize, int interval) {
+        this.appenderName = appenderName;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.workThread = new Thread(new Runnable() {
+            public void run() {
+                work();
+            }
+        });
+        this.workThread.setName("AppenderThread-" + appenderName);
+        this.workThread.setDaemon(true);
+    }
+
+    /**
+     * 构造完成后由子类或工厂调用
+     */
+    void start() {
+        workThread.start();
+    }
+
+    public void append(String name, Level level, String logString) {
+        if (queueCount.incrementAndGet() > capacity) {
+            queueCount.decrementAndGet();
+            droppedCount.increment();
+            return;
+        }
+        queue.offer(new Event(name, level, logString));
+    }
+
+    public int flush(long deadline) {
+        while (queueCount.get() > 0 && workThread.isAlive()) {
+            long remaining = deadline - InnerUtil.getTimestamp();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                Thread.sleep(Math.min(remaining, 10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return queueCount.get();
+    }
+
+    /**
+     * 只通知输出线程退出，连接等资源由输出线程自己释放
+     */
+    public void close(long deadline) {
+        running = false;
+        workThread.interrupt();
+        try {
+            // join(0)表示一直等待，期限已过时也只等1毫秒
+            workThread.join(Math.max(deadline - InnerUtil.getTimestamp(), 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        try {
+            appendLoop();
+        } finally {
+            closeResource();
+        }
+    }
+
+    private void appendLoop() {
+        List<Event> batch = new ArrayList<Event>(batchSize);
+        // 连续失败的批次数，只在第一次失败和恢复时输出，避免目的地不可用时刷屏
+        int failures = 0;
+        while (running) {
+            drainTo(batch);
+            if (batch.isEmpty()) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            int failed;
+            Exception exception = null;
+            try {
+                failed = doAppend(batch);
+            } catch (Exception e) {
+                failed = batch.size();
+                exception = e;
+            }
+            if (failed > 0) {
+                droppedCount.add(failed);
+                if (failures++ == 0) {
+                    String message = "AsyncAppender " + appenderName + " doAppend failed, lost=" + failed
+                            + ", suppress until recovered";
+                    if (exception != null) {
+                        InnerUtil.error(message, exception);
+                    } else {
+                        InnerUtil.info("InnerUtil\t" + message + "\n");
+                    }
+                }
+            } else if (failures > 0) {
+                InnerUtil.info("InnerUtil\tAsyncAppender " + appenderName + " recovered, failedBatches=" + failures
+                        + ", dropped=" + getDroppedCount() + "\n");
+                failures = 0;
+            }
+            // 输出完成后才扣减，flush据此判断是否还有在途日志
+            queueCount.addAndGet(-batch.size());
+            batch.clear();
+
+            if (exception != null) {
+                // 整批失败说明目的地不可用，退避后再重连
+                try {
+                    Thread.sleep(Math.min((long) interval << Math.min(failures, 6), MAX_BACKOFF));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 每批最多取batchSize条
+     */
+    private void drainTo(List<Event> batch) {
+        Event event;
+        while (batch.size() < batchSize && (event = queue.poll()) != null) {
+            batch.add(event);
+        }
+    }
+
+    /**
+     * 批量输出，只在本Appender的线程中调用
+     * @return 输出失败的条数，抛出异常表示整批失败
+     */
+    abstract int doAppend(List<Event> batch) throws Exception;
+
+    /**
+     * 释放连接等资源，和doAppend一样只在本Appender的线程中调用
+     */
+    void closeResource() {}
+
+    public String getName() {
+        return appenderName;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.longValue();
+    }
+
+    /**
+     * 已经格式化好的日志
+     */
+    static final class Event {
+
+        final String name;
+
+        final Level level;
+
+        final String logString;
+
+        Event(String name, Level level, String logString) {
+            this.name = name;
+            this.level = level;
+            this.logString = logString;
+        }
+    }
+}
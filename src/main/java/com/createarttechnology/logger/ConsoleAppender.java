@@ -0,0 +1,24 @@
+package com.createarttechnology.logger;
+
+import java.util.List;
+
+/**
+ * 控制台输出，每批合并成一次System.out.print
+ */
+final class ConsoleAppender extends AsyncAppender {
+
+    ConsoleAppender(int capacity, int batchSize, int interval) {
+        super("console", capacity, batchSize, interval);
+    }
+
+    @Override
+    int doAppend(List<Event> batch) {
+        StringBuilder sb = new StringBuilder(batch.size() * 128);
+        for (Event event : batch) {
+            sb.append(event.name).append('\t').append(event.logString);
+        }
+        InnerUtil.info(sb.toString());
+        System.out.flush();
+        return 0;
+    }
+}
@@ -0,0 +1,36 @@
+package com.createarttechnology.logger;
+
+/**
+ * LoggerFactory.flush的结果
+ */
+public final class FlushResult {
+
+    /**
+     * 已写入日志文件的条数
+     */
+    private final long flushedCount;
+
+    /**
+     * flush开始时已在Logger队列中但期限内没有写出的条数，加上停机后被拒绝的条数，
+     * 以及期限到达时仍未被Appender输出或输出失败的条数
+     */
+    private final long abandonedCount;
+
+    FlushResult(long flushedCount, long abandonedCount) {
+        this.flushedCount = flushedCount;
+        this.abandonedCount = abandonedCount;
+    }
+
+    public long getFlushedCount() {
+        return flushedCount;
+    }
+
+    public long getAbandonedCount() {
+        return abandonedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "[flushed:" + flushedCount + ", abandoned:" + abandonedCount + "]";
+    }
+}
@@ -1,5 +1,6 @@
 package com.createarttechnology.logger;
 
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Locale;
@@ -13,6 +14,16 @@ final class InnerUtil {
     private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("CTT");
     private static final Locale LOCALE = Locale.CHINA;
 
+    /**
+     * 日志文件编码，写入和检索保持一致
+     */
+    static final Charset CHARSET = Charset.defaultCharset();
+
+    /**
+     * 稀疏时间索引文件后缀，name.yyyy-MM-dd.idx
+     */
+    static final String INDEX_SUFFIX = ".idx";
+
     /**
      * 不允许实例化
      */
@@ -65,6 +76,16 @@ final class InnerUtil {
         return sb.toString();
     }
 
+    /**
+     * 获取某一天零点的时间戳，month从1开始
+     */
+    static long getDayStart(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance(TIME_ZONE, LOCALE);
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar.getTimeInMillis();
+    }
+
     /**
      * 获取格式化时间字符串，YYYY-MM-DD HH:mm:ss.SSS
      */
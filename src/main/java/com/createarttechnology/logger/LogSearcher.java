@@ -0,0 +1,473 @@
+package com.createarttechnology.logger;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 日志检索，按时间范围、等级和关键字查找，用稀疏索引定位起始位置，内存映射读取
+ * 日志基本按时间顺序写入，检索到第一条晚于结束时间的日志即停止
+ */
+public final class LogSearcher {
+
+    /**
+     * 默认每次映射的最大字节数
+     */
+    private static final int WINDOW = 64 * 1024 * 1024;
+
+    /**
+     * YYYY-MM-DD HH:mm:ss.SSS
+     */
+    private static final int TIME_LENGTH = 23;
+
+    /**
+     * 检索结果回调
+     */
+    public interface Handler {
+        /**
+         * @param record 完整的一条日志，包括异常堆栈和结尾换行
+         * @return false时停止检索
+         */
+        boolean handle(long time, String level, String record);
+    }
+
+    /**
+     * follow时会切换到新一天的文件
+     */
+    private File logFile;
+
+    private long fromTime = Long.MIN_VALUE;
+
+    private long toTime = Long.MAX_VALUE;
+
+    /**
+     * 最低日志等级，null表示不过滤
+     */
+    private Level level;
+
+    private String keyword;
+
+    /**
+     * 同一天的日志只计算一次零点时间戳
+     */
+    private int cachedDate = -1;
+
+    private long cachedDayStart;
+
+    private byte[] record = new byte[4096];
+
+    private int recordLength;
+
+    private long recordTime = -1;
+
+    private final byte[] timeBytes = new byte[TIME_LENGTH];
+
+    /**
+     * 每次映射的最大字节数
+     */
+    private final int window;
+
+    public LogSearcher(File logFile) {
+        this(logFile, WINDOW);
+    }
+
+    /**
+     * 测试时用较小的窗口覆盖跨窗口的日志
+     */
+    LogSearcher(File logFile, int window) {
+        this.logFile = logFile;
+        this.window = window;
+    }
+
+    /**
+     * 检索文件中已有的日志
+     * @return 匹配的日志条数
+     */
+    public long search(Handler handler) throws IOException {
+        CountingHandler countingHandler = new CountingHandler(handler);
+        recordLength = 0;
+        recordTime = -1;
+        scan(seek(), countingHandler, false);
+        return countingHandler.count;
+    }
+
+    /**
+     * 持续跟踪文件新增的日志，未设置开始时间时从文件末尾开始，线程中断或handler返回false时结束
+     * Logger的写缓冲满时会写出半条日志，甚至半个UTF-8字符：scan只读到最后一个换行符，
+     * 最后一条日志等到下一条日志出现或文件空闲一个周期后才输出
+     * 文件名是name.yyyy-MM-dd时，当前文件读完且当天的文件出现后，切换到当天的文件从头读取
+     */
+    public void follow(Handler handler, long interval) throws IOException, InterruptedException {
+        long offset = fromTime == Long.MIN_VALUE ? logFile.length() : seek();
+        recordLength = 0;
+        recordTime = -1;
+        while (!Thread.currentThread().isInterrupted()) {
+            long length = logFile.length();
+            if (length < offset) {
+                // 文件被截断或重建
+                offset = 0;
+                recordLength = 0;
+                recordTime = -1;
+            }
+            if (length > offset) {
+                offset = scan(offset, handler, true);
+                if (offset < 0) {
+                    return;
+                }
+            } else {
+                if (recordLength > 0) {
+                    if (!emit(handler)) {
+                        return;
+                    }
+                    // 已经输出，之后再出现的续行不完整，跳过
+                    recordTime = -1;
+                }
+                File nextFile = nextDayFile();
+                if (nextFile != null) {
+                    logFile = nextFile;
+                    offset = 0;
+                    recordTime = -1;
+                    continue;
+                }
+            }
+            Thread.sleep(interval);
+        }
+    }
+
+    /**
+     * Logger按写入日期选择文件，过了零点后返回当天的文件，不存在或不是按日期命名的文件返回null
+     */
+    private File nextDayFile() {
+        String name = logFile.getName();
+        int dot = name.length() - 11;
+        if (dot <= 0 || name.charAt(dot) != '.' || !name.substring(dot + 1).matches("\\d{4}-\\d{2}-\\d{2}")) {
+            return null;
+        }
+        String today = InnerUtil.buildDateString(InnerUtil.getTimestamp());
+        if (today.compareTo(name.substring(dot + 1)) <= 0) {
+            return null;
+        }
+        File nextFile = new File(logFile.getParentFile(), name.substring(0, dot + 1) + today);
+        return nextFile.exists() ? nextFile : null;
+    }
+
+    /**
+     * 通过索引找到开始时间所在时间段的第一条日志，没有索引时从头开始
+     */
+    long seek() throws IOException {
+        File indexFile = new File(logFile.getPath() + InnerUtil.INDEX_SUFFIX);
+        if (fromTime == Long.MIN_VALUE || !indexFile.exists()) {
+            return 0;
+        }
+        long bestBucket = Long.MIN_VALUE;
+        long bestOffset = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            long entries = indexFile.length() / 16;
+            for (long i = 0; i < entries; i++) {
+                long bucket = in.readLong();
+                long offset = in.readLong();
+                // 重启后同一时间段可能有多条，取最早的
+                if (bucket <= fromTime && bucket > bestBucket) {
+                    bestBucket = bucket;
+                    bestOffset = offset;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return Math.min(bestOffset, logFile.length());
+    }
+
+    /**
+     * 从start开始逐行读取到最后一个完整的行，按时间戳把多行拼成一条日志
+     * @param follow 为true时最后一条日志留到下一次scan继续拼接
+     * @return 已读取到的位置，被handler停止时返回-1
+     */
+    private long scan(long start, Handler handler, boolean follow) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(logFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long fileSize = channel.size();
+            long pos = start;
+            int currentWindow = window;
+            while (pos < fileSize) {
+                int size = (int) Math.min(currentWindow, fileSize - pos);
+                boolean last = pos + size == fileSize;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+                int lineStart = 0;
+                for (int i = 0; i < size; i++) {
+                    if (buffer.get(i) != '\n') {
+                        continue;
+                    }
+                    int lineLength = i + 1 - lineStart;
+                    long time = -1;
+                    if (lineLength > TIME_LENGTH && buffer.get(lineStart + TIME_LENGTH) == '\t') {
+                        time = parseTime(buffer, lineStart);
+                    }
+                    if (time >= 0) {
+                        // 新的一条日志开始，输出上一条
+                        if (!emit(handler)) {
+                            return -1;
+                        }
+                        if (time > toTime) {
+                            return -1;
+                        }
+                        recordTime = time;
+                    }
+                    // 文件开头不完整的日志直接跳过
+                    if (recordTime >= 0 && recordTime >= fromTime) {
+                        appendRecord(buffer, lineStart, lineLength);
+                    }
+                    lineStart = i + 1;
+                }
+                if (lineStart == 0 && !last) {
+                    // 一行超过映射窗口，扩大窗口重新映射这一行，否则行首的时间戳会被拆开
+                    currentWindow = currentWindow > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : currentWindow * 2;
+                    continue;
+                }
+                currentWindow = window;
+                pos += lineStart;
+                if (last) {
+                    break;
+                }
+            }
+            if (!follow && !emit(handler)) {
+                return -1;
+            }
+            return pos;
+        } finally {
+            file.close();
+        }
+    }
+
+    private void appendRecord(MappedByteBuffer buffer, int offset, int length) {
+        if (recordLength + length > record.length) {
+            byte[] newRecord = new byte[Math.max(record.length * 2, recordLength + length)];
+            System.arraycopy(record, 0, newRecord, 0, recordLength);
+            record = newRecord;
+        }
+        for (int i = 0; i < length; i++) {
+            record[recordLength++] = buffer.get(offset + i);
+        }
+    }
+
+    /**
+     * 等级和关键字过滤后交给handler
+     */
+    private boolean emit(Handler handler) {
+        if (recordLength == 0) {
+            return true;
+        }
+        int length = recordLength;
+        recordLength = 0;
+
+        int levelEnd = TIME_LENGTH + 1;
+        while (levelEnd < length && record[levelEnd] != '\t') {
+            levelEnd++;
+        }
+        String levelName = new String(record, TIME_LENGTH + 1, levelEnd - TIME_LENGTH - 1, StandardCharsets.ISO_8859_1);
+        if (level != null) {
+            try {
+                if (Level.valueOf(levelName).getValue() < level.getValue()) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                return true;
+            }
+        }
+        String recordString = new String(record, 0, length, InnerUtil.CHARSET);
+        if (keyword != null && !recordString.contains(keyword)) {
+            return true;
+        }
+        return handler.handle(recordTime, levelName, recordString);
+    }
+
+    /**
+     * 解析行首的YYYY-MM-DD HH:mm:ss.SSS，格式不对返回-1
+     */
+    private long parseTime(MappedByteBuffer buffer, int offset) {
+        for (int i = 0; i < TIME_LENGTH; i++) {
+            timeBytes[i] = buffer.get(offset + i);
+        }
+        return parseTime(timeBytes);
+    }
+
+    long parseTime(byte[] b) {
+        if (b.length < TIME_LENGTH || b[4] != '-' || b[7] != '-' || b[10] != ' '
+                || b[13] != ':' || b[16] != ':' || b[19] != '.') {
+            return -1;
+        }
+        int year = digits(b, 0, 4);
+        int month = digits(b, 5, 2);
+        int day = digits(b, 8, 2);
+        int hour = digits(b, 11, 2);
+        int min = digits(b, 14, 2);
+        int sec = digits(b, 17, 2);
+        int millis = digits(b, 20, 3);
+        // Calendar是宽松的，越界的值会进位到下一个月或下一年，这里先校验
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysOfMonth(year, month)
+                || hour < 0 || hour > 23 || min < 0 || min > 59 || sec < 0 || sec > 59 || millis < 0) {
+            return -1;
+        }
+        int date = year * 10000 + month * 100 + day;
+        if (date != cachedDate) {
+            cachedDayStart = InnerUtil.getDayStart(year, month, day);
+            cachedDate = date;
+        }
+        return cachedDayStart + ((hour * 60L + min) * 60 + sec) * 1000 + millis;
+    }
+
+    private static int daysOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int digits(byte[] b, int offset, int length) {
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (b[i] < '0' || b[i] > '9') {
+                return -1;
+            }
+            value = value * 10 + (b[i] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * 解析命令行中的时间，YYYY-MM-DD HH:mm:ss[.SSS]，只精确到秒时结束时间包括这一整秒
+     */
+    long parseTimeString(String s, boolean end) {
+        if (s.length() == TIME_LENGTH - 4) {
+            s = s + (end ? ".999" : ".000");
+        }
+        long time = s.length() == TIME_LENGTH ? parseTime(s.getBytes(StandardCharsets.ISO_8859_1)) : -1;
+        if (time < 0) {
+            throw new IllegalArgumentException("invalid time: " + s);
+        }
+        return time;
+    }
+
+    /**
+     * getters and setters
+     */
+    public void setTimeRange(long fromTime, long toTime) {
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+    }
+
+    /**
+     * 只保留不低于该等级的日志
+     */
+    public void setLevel(String level) {
+        this.level = level == null ? null : Level.valueOf(level.toUpperCase());
+    }
+
+    public void setKeyword(String keyword) {
+        this.keyword = keyword;
+    }
+
+    public File getLogFile() {
+        return logFile;
+    }
+
+    private static final class CountingHandler implements Handler {
+
+        private final Handler handler;
+
+        private long count;
+
+        CountingHandler(Handler handler) {
+            this.handler = handler;
+        }
+
+        public boolean handle(long time, String level, String record) {
+            count++;
+            return handler.handle(time, level, record);
+        }
+    }
+
+    private static void usage(String error) {
+        if (error != null) {
+            System.err.println(error);
+        }
+        System.err.println("usage: LogSearcher [-from \"yyyy-MM-dd HH:mm:ss\"] [-to \"yyyy-MM-dd HH:mm:ss\"] "
+                + "[-level LEVEL] [-grep keyword] [-f] file");
+        System.err.println("  -f  follow the file; for name.yyyy-MM-dd files, switch to the new day's file after midnight");
+        System.exit(1);
+    }
+
+    /**
+     * 命令行入口
+     * LogSearcher [-from time] [-to time] [-level LEVEL] [-grep keyword] [-f] file
+     */
+    public static void main(String[] args) throws Exception {
+        String from = null;
+        String to = null;
+        String levelStr = null;
+        String keyword = null;
+        boolean follow = false;
+        String path = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-from".equals(arg) && i + 1 < args.length) {
+                from = args[++i];
+            } else if ("-to".equals(arg) && i + 1 < args.length) {
+                to = args[++i];
+            } else if ("-level".equals(arg) && i + 1 < args.length) {
+                levelStr = args[++i];
+            } else if ("-grep".equals(arg) && i + 1 < args.length) {
+                keyword = args[++i];
+            } else if ("-f".equals(arg)) {
+                follow = true;
+            } else {
+                path = arg;
+            }
+        }
+        if (path == null) {
+            usage(null);
+        }
+
+        LogSearcher searcher = new LogSearcher(new File(path));
+        try {
+            long fromTime = from == null ? Long.MIN_VALUE : searcher.parseTimeString(from, false);
+            long toTime = to == null ? Long.MAX_VALUE : searcher.parseTimeString(to, true);
+            searcher.setTimeRange(fromTime, toTime);
+            searcher.setLevel(levelStr);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+        }
+        searcher.setKeyword(keyword);
+
+        final PrintStream out = System.out;
+        Handler handler = new Handler() {
+            public boolean handle(long time, String level, String record) {
+                out.print(record);
+                return true;
+            }
+        };
+        if (follow) {
+            searcher.follow(new Handler() {
+                public boolean handle(long time, String level, String record) {
+                    out.print(record);
+                    out.flush();
+                    return true;
+                }
+            }, 500);
+        } else {
+            searcher.search(handler);
+            out.flush();
+        }
+    }
+}
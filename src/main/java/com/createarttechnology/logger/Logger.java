@@ -1,6 +1,7 @@
 package com.createarttechnology.logger;
 
 import java.io.*;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -30,28 +31,46 @@ public final class Logger {
      */
     private final LongAdder exceptionCount = new LongAdder();
 
+    /**
+     * 停机开始后被拒绝的日志数目
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
     /**
      * 日志文件大小
      */
     private long size;
 
     /**
-     * 日志标准输出
+     * 文件之外的输出目的地，格式化一次后分发
      */
-    private final boolean stdout;
+    private final List<Appender> appenders;
 
     private final int printSize;
 
     private final int clearThreshold;
 
+    /**
+     * 稀疏索引的时间粒度，毫秒，0表示不建索引
+     */
+    private final long indexInterval;
+
+    /**
+     * 当前索引对应的日志文件和最后一个已索引的时间段
+     */
+    private String indexedFileName;
+
+    private long lastIndexedBucket = -1;
+
     private static final Logger ALL_EXCEPTION = LoggerFactory.getLogger("_AllException");
 
-    Logger(String name, Level level, boolean stdout, int printSize, int clearThreshold) {
+    Logger(String name, Level level, List<Appender> appenders, int printSize, int clearThreshold, long indexInterval) {
         this.name = name;
         this.level = level;
-        this.stdout = stdout;
+        this.appenders = appenders;
         this.printSize = printSize;
         this.clearThreshold = clearThreshold;
+        this.indexInterval = indexInterval;
     }
 
     /**
@@ -80,6 +99,11 @@ public final class Logger {
      * 统一入队方法
      */
     private void logWithoutCheckLevel(LogItem item) {
+        if (LoggerFactory.isShutdown()) {   // 停机时不再接收日志
+            exceptionCount.increment();
+            rejectedCount.increment();
+            return;
+        }
         if (item.getThrowable() != null && !this.equals(ALL_EXCEPTION)) {  // 把所有异常记录到_AllException中
             exceptionCount.increment();
             ALL_EXCEPTION.error(name + '\t' + buildLogString(item));
@@ -92,9 +116,25 @@ public final class Logger {
     }
 
     /**
-     * 输出日志到文件系统和命令行
+     * 输出日志到文件系统，并分发给其他Appender
      */
     void doWriteLog() throws Exception {
+        // 每次最多打印printSize条避免日志过多阻塞其他logger
+        writeLog(printSize, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * 停机或手动flush时调用，不做积压清理，写到队列为空或超过deadline，并强制刷盘
+     * @return 写出的日志条数
+     */
+    int flush(long deadline) throws IOException {
+        return writeLog(Integer.MAX_VALUE, deadline, true);
+    }
+
+    /**
+     * 整个写入过程持有锁，避免LogWorkThread和flush各自缓冲后交错写入同一文件
+     */
+    private synchronized int writeLog(int maxCount, long deadline, boolean drain) throws IOException {
         String path = System.getProperty("catalina.home");
         if (path == null) {
             path = "/data";
@@ -107,45 +147,82 @@ public final class Logger {
         if (!logFile.exists()) {
             logFile.createNewFile();
         }
-        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true)));
+        // 自己编码并累计字节数，不必每条日志都查询文件长度，也能得到索引需要的偏移量
+        long offset = logFile.length();
+        if (offset < size) {
+            // 说明是新一天的日志文件了，exceptionCount清空
+            exceptionCount.reset();
+        }
+        if (!logFile.getName().equals(indexedFileName)) {
+            indexedFileName = logFile.getName();
+            lastIndexedBucket = -1;
+        }
+        DataOutputStream index = null;
+        ByteArrayOutputStream indexBuffer = null;
+        FileOutputStream fos = new FileOutputStream(logFile, true);
+        // 缓冲满时会写出半条日志，LogSearcher.follow只读完整的行并暂存最后一条
+        BufferedOutputStream bw = new BufferedOutputStream(fos, 8192);
+        int count = 0;
         try {
-            synchronized (this) {
-                int i = 0;
-                // 每次最多打印100条避免日志过多阻塞其他logger
-                while (!logQueue.isEmpty() && i++ < printSize) {
-                    final LogItem item = logQueue.poll();
-                    String logString = buildLogString(item);
-                    try {
-                        bw.write(logString);
-                    } catch (Exception e) {
-                        InnerUtil.error("Logger doWriteLog bw.write", e);
-                    }
-                    long fileSize = logFile.length();
-                    if (fileSize < size) {
-                        // 说明是新一天的日志文件了，exceptionCount清空
-                        exceptionCount.reset();
-                    }
-                    this.size = fileSize;
-                    if (stdout) {
-                        InnerUtil.info(name + '\t' + logString);
+            while (!logQueue.isEmpty() && count < maxCount && InnerUtil.getTimestamp() < deadline) {
+                final LogItem item = logQueue.poll();
+                count++;
+                String logString = buildLogString(item);
+                if (indexInterval > 0) {
+                    long bucket = item.getTime() / indexInterval * indexInterval;
+                    if (bucket > lastIndexedBucket) {
+                        if (index == null) {
+                            indexBuffer = new ByteArrayOutputStream(64);
+                            index = new DataOutputStream(indexBuffer);
+                        }
+                        index.writeLong(bucket);
+                        index.writeLong(offset);
+                        lastIndexedBucket = bucket;
                     }
                 }
-                // 避免日志积压过多
-                if (logQueue.size() > clearThreshold) {
-                    exceptionCount.increment();
-                    ALL_EXCEPTION.info("logQueue clear, name={}, size={}", name, getQueueCount());
-                    logQueue.clear();
+                try {
+                    byte[] bytes = logString.getBytes(InnerUtil.CHARSET);
+                    bw.write(bytes);
+                    offset += bytes.length;
+                } catch (Exception e) {
+                    InnerUtil.error("Logger doWriteLog bw.write", e);
                 }
+                this.size = offset;
+                for (Appender appender : appenders) {
+                    appender.append(name, item.getLevel(), logString);
+                }
+            }
+            // 避免日志积压过多
+            if (!drain && logQueue.size() > clearThreshold) {
+                exceptionCount.increment();
+                ALL_EXCEPTION.info("logQueue clear, name={}, size={}", name, getQueueCount());
+                logQueue.clear();
             }
         } finally {
             try {
                 bw.flush();
+                if (drain) {
+                    fos.getFD().sync();
+                }
                 bw.close();
             } catch (IOException e) {
                 exceptionCount.increment();
                 InnerUtil.error("Logger doWriteLog bw.flush, bw.close", e);
             }
         }
+        // 日志写入文件之后再追加索引，索引不会指向还没写入的位置
+        if (indexBuffer != null) {
+            FileOutputStream indexStream = new FileOutputStream(logFile.getPath() + InnerUtil.INDEX_SUFFIX, true);
+            try {
+                indexBuffer.writeTo(indexStream);
+            } catch (IOException e) {
+                exceptionCount.increment();
+                InnerUtil.error("Logger doWriteLog indexBuffer.writeTo", e);
+            } finally {
+                indexStream.close();
+            }
+        }
+        return count;
     }
 
     /**
@@ -253,6 +330,13 @@ public final class Logger {
         return exceptionCount.longValue();
     }
 
+    /**
+     * 取出并清零，每条被拒绝的日志只统计一次
+     */
+    long takeRejectedCount() {
+        return rejectedCount.sumThenReset();
+    }
+
     public int getLogQueueSize() {
         return logQueue.size();
     }
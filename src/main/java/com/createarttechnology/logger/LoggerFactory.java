@@ -2,7 +2,8 @@ package com.createarttechnology.logger;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 日志工厂类
@@ -30,6 +31,26 @@ public final class LoggerFactory {
      */
     private static final int CLEAR_THRESHOLD;
 
+    /**
+     * 稀疏时间索引粒度，秒，0表示不建索引
+     */
+    private static final int INDEX_INTERVAL;
+
+    /**
+     * 停机时flush的最长时间，毫秒
+     */
+    private static final int SHUTDOWN_TIMEOUT;
+
+    /**
+     * 停机开始后不再接收日志
+     */
+    private static volatile boolean SHUTDOWN = false;
+
+    /**
+     * 文件之外的输出目的地，所有Logger共用，每个Appender有独立队列和线程
+     */
+    private static final List<Appender> APPENDERS;
+
     /**
      * 所有日志放在ConcurrentHashMap中
      */
@@ -79,22 +100,96 @@ public final class LoggerFactory {
         }
         CLEAR_THRESHOLD = clearThreshold;
 
-        String configInfo = String.format("LoggerFactory\t%s\tINFO\t[level:%s, stdout:%b, printSize:%d, clearThreshold:%d]\n",
+        INDEX_INTERVAL = getIntProperty("logger.properties.indexInterval", 0);
+
+        SHUTDOWN_TIMEOUT = getIntProperty("logger.properties.shutdownTimeout", 3000);
+
+        String appendersStr = System.getProperty("logger.properties.appenders", "");
+        APPENDERS = Collections.unmodifiableList(buildAppenders(appendersStr));
+
+        String configInfo = String.format("LoggerFactory\t%s\tINFO\t[level:%s, stdout:%b, printSize:%d, clearThreshold:%d, indexInterval:%d, shutdownTimeout:%d, appenders:%s]\n",
                 InnerUtil.buildTimeString(System.currentTimeMillis()),
-                LEVEL, STDOUT, PRINT_SIZE, CLEAR_THRESHOLD);
+                LEVEL, STDOUT, PRINT_SIZE, CLEAR_THRESHOLD, INDEX_INTERVAL, SHUTDOWN_TIMEOUT, appendersStr);
 
         InnerUtil.info(configInfo);
 
-        final LogWorkThread logWorkThread = new LogWorkThread();
+        final LogWorkThread logWorkThread = new LogWorkThread(getIntProperty("logger.properties.interval", 500));
         logWorkThread.start();
         //注册退出功能
         Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
             public void run() {
-                logWorkThread.shutdown();
+                long deadline = InnerUtil.getTimestamp() + SHUTDOWN_TIMEOUT;
+                SHUTDOWN = true;
+                logWorkThread.shutdown(deadline);
+                FlushResult result = flush(deadline);
+                for (Appender appender : APPENDERS) {
+                    appender.close(deadline);
+                }
+                StringBuilder sb = new StringBuilder(128);
+                sb.append("LoggerFactory\t").append(InnerUtil.buildTimeString(InnerUtil.getTimestamp()))
+                        .append("\tINFO\tshutdown ").append(result);
+                for (Appender appender : APPENDERS) {
+                    sb.append(", ").append(appender.getName()).append(" dropped:").append(appender.getDroppedCount());
+                }
+                InnerUtil.info(sb.append('\n').toString());
             }
         }));
     }
 
+    /**
+     * 根据配置创建Appender，stdout为true时等同于配置了console
+     */
+    private static List<Appender> buildAppenders(String appendersStr) {
+        int capacity = getIntProperty("logger.properties.appender.capacity", 10000);
+        int batchSize = getIntProperty("logger.properties.appender.batchSize", 100);
+        int interval = getIntProperty("logger.properties.appender.interval", 100);
+
+        Set<String> names = new LinkedHashSet<String>();
+        if (STDOUT) {
+            names.add("console");
+        }
+        for (String appenderName : appendersStr.split(",")) {
+            appenderName = appenderName.trim().toLowerCase();
+            if (appenderName.length() > 0) {
+                names.add(appenderName);
+            }
+        }
+
+        List<Appender> appenders = new ArrayList<Appender>(names.size());
+        for (String appenderName : names) {
+            AsyncAppender appender;
+            if ("console".equals(appenderName)) {
+                appender = new ConsoleAppender(capacity, batchSize, interval);
+            } else if ("syslog".equals(appenderName)) {
+                String host = System.getProperty("logger.properties.syslog.host", "127.0.0.1");
+                int port = getIntProperty("logger.properties.syslog.port", 514);
+                String protocol = System.getProperty("logger.properties.syslog.protocol", "udp");
+                int facility = getIntProperty("logger.properties.syslog.facility", 1);
+                appender = new SyslogAppender(host, port, "tcp".equalsIgnoreCase(protocol), facility,
+                        capacity, batchSize, interval);
+            } else {
+                InnerUtil.info("LoggerFactory\tunknown appender ignored, name=" + appenderName + "\n");
+                continue;
+            }
+            appender.start();
+            appenders.add(appender);
+        }
+        return appenders;
+    }
+
+    private static int getIntProperty(String key, int defaultValue) {
+        String valueStr = System.getProperty(key);
+        if (valueStr == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.valueOf(valueStr.trim());
+        } catch (NumberFormatException e) {
+            InnerUtil.error("LoggerFactory getIntProperty " + key, e);
+            return defaultValue;
+        }
+    }
+
     /**
      * 工厂方法获取Logger实例
      */
@@ -102,7 +197,7 @@ public final class LoggerFactory {
         Logger logger = LOGGERS.get(name);
         if (logger == null) {
             synchronized (LoggerFactory.class) {
-                logger = new Logger(name, LEVEL, STDOUT, PRINT_SIZE, CLEAR_THRESHOLD);
+                logger = new Logger(name, LEVEL, APPENDERS, PRINT_SIZE, CLEAR_THRESHOLD, INDEX_INTERVAL * 1000L);
                 LOGGERS.putIfAbsent(name, logger);
             }
         }
@@ -113,6 +208,98 @@ public final class LoggerFactory {
         return getLogger(clazz.getSimpleName());
     }
 
+    static boolean isShutdown() {
+        return SHUTDOWN;
+    }
+
+    /**
+     * 把所有Logger队列中的日志写入文件并刷盘，再等待Appender输出完成，用于测试和受控重启
+     * abandoned按flush开始时Logger队列中的日志统计，flush期间新入队的不计入；
+     * Appender部分是期限到达时仍未输出的条数，不停机时这些日志之后仍会输出
+     */
+    public static FlushResult flush() {
+        return flush(InnerUtil.getTimestamp() + SHUTDOWN_TIMEOUT);
+    }
+
+    public static FlushResult flush(long timeout, TimeUnit unit) {
+        return flush(InnerUtil.getTimestamp() + unit.toMillis(timeout));
+    }
+
+    /**
+     * Logger之间互不影响，并行写出，所有任务共用同一个deadline
+     */
+    private static FlushResult flush(final long deadline) {
+        final LongAdder flushedCount = new LongAdder();
+        final LongAdder abandonedCount = new LongAdder();
+        List<Logger> loggers = new ArrayList<Logger>(LOGGERS.values());
+        // 和LogWorkThread一样跳过空队列，避免给空闲的Logger创建空文件并刷盘
+        List<Logger> pendingLoggers = new ArrayList<Logger>(loggers.size());
+        for (Logger logger : loggers) {
+            // 停机后被拒绝的日志也算未能输出，每次flush只统计上次之后新增的
+            abandonedCount.add(logger.takeRejectedCount());
+            if (logger.getLogQueueSize() > 0) {
+                pendingLoggers.add(logger);
+            }
+        }
+        int threads = Math.min(pendingLoggers.size(), Runtime.getRuntime().availableProcessors());
+        if (threads > 0) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "LogFlushThread");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            try {
+                List<Future<?>> futures = new ArrayList<Future<?>>(pendingLoggers.size());
+                for (final Logger logger : pendingLoggers) {
+                    // 开始时的队列长度作为快照，写出的少于快照的部分算作未能输出
+                    final int pendingCount = logger.getLogQueueSize();
+                    futures.add(executor.submit(new Runnable() {
+                        public void run() {
+                            int count = 0;
+                            try {
+                                count = logger.flush(deadline);
+                                flushedCount.add(count);
+                            } catch (IOException e) {
+                                InnerUtil.error("LoggerFactory flush logger.flush, name=" + logger.getName(), e);
+                            }
+                            abandonedCount.add(Math.max(pendingCount - count, 0));
+                        }
+                    }));
+                }
+                // 文件写入无法中断，只靠writeLog中的deadline结束任务，全部结束后再统计
+                boolean interrupted = false;
+                for (Future<?> future : futures) {
+                    while (true) {
+                        try {
+                            future.get();
+                            break;
+                        } catch (ExecutionException e) {
+                            InnerUtil.error("LoggerFactory flush future.get", e);
+                            break;
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        for (Appender appender : APPENDERS) {
+            // 本次flush期间输出失败的也算未能输出
+            long droppedCount = appender.getDroppedCount();
+            abandonedCount.add(appender.flush(deadline));
+            abandonedCount.add(appender.getDroppedCount() - droppedCount);
+        }
+        return new FlushResult(flushedCount.longValue(), abandonedCount.longValue());
+    }
+
     /**
      * 获取所有Logger，供LogWorkThread排序，用只读Map包装
      * @return
@@ -123,9 +310,13 @@ public final class LoggerFactory {
 
     static class LogWorkThread extends Thread {
 
-        private int INTERVAL = 500;
+        /**
+         * 两轮写文件之间的间隔，毫秒
+         */
+        private final int interval;
 
-        LogWorkThread() {
+        LogWorkThread(int interval) {
+            this.interval = interval;
             this.setName("LogWorkThread");
             this.setDaemon(true);
         }
@@ -134,10 +325,10 @@ public final class LoggerFactory {
         public void run() {
             while (!interrupted()) {
                 try {
-                    sleep(INTERVAL);
-                } catch (Exception e) {
-                    InnerUtil.error("LogWorkThread run sleep", e);
-                    Thread.currentThread().interrupt();
+                    sleep(interval);
+                } catch (InterruptedException e) {
+                    // 停机时退出，剩余日志由flush写出
+                    break;
                 }
 
                 Map<String, Logger> loggers = LoggerFactory.getLoggers();
@@ -153,8 +344,16 @@ public final class LoggerFactory {
             }
         }
 
-        void shutdown() {
+        /**
+         * 等待当前这一轮写完，避免和flush同时打开同一文件
+         */
+        void shutdown(long deadline) {
             this.interrupt();
+            try {
+                this.join(Math.max(deadline - InnerUtil.getTimestamp(), 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
 
 
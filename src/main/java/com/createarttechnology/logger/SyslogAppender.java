@@ -0,0 +1,153 @@
+package com.createarttechnology.logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * syslog输出，消息格式RFC 5424，TCP使用octet-counting分帧(RFC 6587)，UDP每条消息一个数据报
+ */
+final class SyslogAppender extends AsyncAppender {
+
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    /**
+     * UDP单条消息的最大字节数，RFC 5426建议接收方至少支持2048
+     */
+    static final int MAX_DATAGRAM_SIZE = 2048;
+
+    private final InetSocketAddress address;
+
+    private final boolean tcp;
+
+    private final int facility;
+
+    private Socket socket;
+
+    private OutputStream out;
+
+    private DatagramSocket datagramSocket;
+
+    SyslogAppender(String host, int port, boolean tcp, int facility, int capacity, int batchSize, int interval) {
+        super("syslog", capacity, batchSize, interval);
+        this.address = new InetSocketAddress(host, port);
+        this.tcp = tcp;
+        this.facility = facility;
+    }
+
+    @Override
+    int doAppend(List<Event> batch) throws IOException {
+        if (tcp) {
+            // 整批拼好一次写出
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(batch.size() * 160);
+            for (Event event : batch) {
+                byte[] message = buildMessage(event);
+                buffer.write(String.valueOf(message.length).getBytes(StandardCharsets.US_ASCII));
+                buffer.write(' ');
+                buffer.write(message);
+            }
+            try {
+                if (socket == null) {
+                    socket = new Socket();
+                    socket.connect(address, CONNECT_TIMEOUT);
+                    out = socket.getOutputStream();
+                }
+                buffer.writeTo(out);
+                out.flush();
+            } catch (IOException e) {
+                // 断开后下一批重连
+                closeResource();
+                throw e;
+            }
+        } else {
+            if (datagramSocket == null) {
+                datagramSocket = new DatagramSocket();
+            }
+            // 每条单独处理，一条失败不影响同批其他日志
+            int failed = 0;
+            IOException lastException = null;
+            for (Event event : batch) {
+                byte[] message = buildMessage(event);
+                try {
+                    datagramSocket.send(new DatagramPacket(message, 0, datagramLength(message), address));
+                } catch (IOException e) {
+                    failed++;
+                    lastException = e;
+                }
+            }
+            if (failed == batch.size()) {
+                throw lastException;
+            }
+            return failed;
+        }
+        return 0;
+    }
+
+    @Override
+    void closeResource() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                InnerUtil.error("SyslogAppender closeResource socket.close", e);
+            }
+            socket = null;
+            out = null;
+        }
+        if (datagramSocket != null) {
+            datagramSocket.close();
+            datagramSocket = null;
+        }
+    }
+
+    /**
+     * &lt;PRI&gt;1 - - APP-NAME - - - MSG，时间和等级已经包含在MSG中
+     */
+    private byte[] buildMessage(Event event) {
+        String logString = event.logString;
+        int end = logString.length();
+        if (end > 0 && logString.charAt(end - 1) == '\n') {
+            end--;
+        }
+        StringBuilder sb = new StringBuilder(end + 32);
+        sb.append('<').append(facility * 8 + severity(event.level)).append(">1 - - ")
+                .append(event.name).append(" - - - ")
+                .append(logString, 0, end);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 超长消息截断，不截断在UTF-8多字节字符中间
+     */
+    private static int datagramLength(byte[] message) {
+        if (message.length <= MAX_DATAGRAM_SIZE) {
+            return message.length;
+        }
+        int length = MAX_DATAGRAM_SIZE;
+        while (length > 0 && (message[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return length;
+    }
+
+    private static int severity(Level level) {
+        switch (level) {
+            case FATAL:
+                return 2;
+            case ERROR:
+                return 3;
+            case WARN:
+                return 4;
+            case INFO:
+                return 6;
+            default:
+                return 7;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.createarttechnology.logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * LogSearcher对临时文件的检索和跟踪
+ */
+public class LogSearcherTest {
+
+    /**
+     * 2026-10-20 10:00:00.000
+     */
+    private static final long BASE = InnerUtil.getDayStart(2026, 10, 20) + 10 * 3600 * 1000L;
+
+    private static final long MINUTE = 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSeekWithIndex() throws Exception {
+        File logFile = folder.newFile("app.2026-10-20");
+        String a = record(BASE, "INFO", "a");
+        String b = record(BASE + MINUTE, "INFO", "b");
+        String c = record(BASE + MINUTE + 10, "INFO", "c");
+        String d = record(BASE + 2 * MINUTE, "INFO", "d");
+        write(logFile, a + b + c + d);
+
+        long offsetB = a.length();
+        long offsetC = offsetB + b.length();
+        long offsetD = offsetC + c.length();
+        // 重启后同一分钟又写了一条索引
+        DataOutputStream index = new DataOutputStream(new FileOutputStream(logFile.getPath() + InnerUtil.INDEX_SUFFIX));
+        try {
+            writeEntry(index, BASE, 0);
+            writeEntry(index, BASE + MINUTE, offsetB);
+            writeEntry(index, BASE + MINUTE, offsetC);
+            writeEntry(index, BASE + 2 * MINUTE, offsetD);
+        } finally {
+            index.close();
+        }
+
+        LogSearcher searcher = new LogSearcher(logFile);
+        searcher.setTimeRange(BASE + MINUTE + 5, Long.MAX_VALUE);
+        assertEquals(offsetB, searcher.seek());
+        assertEquals(asList(c, d), search(searcher));
+
+        searcher.setTimeRange(BASE + 2 * MINUTE + 1, Long.MAX_VALUE);
+        assertEquals(offsetD, searcher.seek());
+
+        // 早于所有索引从头开始
+        searcher.setTimeRange(BASE - MINUTE, Long.MAX_VALUE);
+        assertEquals(0, searcher.seek());
+        assertEquals(asList(a, b, c, d), search(searcher));
+    }
+
+    @Test
+    public void testSecondsOnlyToCoversWholeSecond() throws Exception {
+        File logFile = folder.newFile("app.log");
+        String a = record(BASE + 1000, "INFO", "a");
+        String b = record(BASE + 1500, "INFO", "b");
+        String c = record(BASE + 1999, "INFO", "c");
+        String d = record(BASE + 2000, "INFO", "d");
+        write(logFile, record(BASE + 999, "INFO", "before") + a + b + c + d);
+
+        LogSearcher searcher = new LogSearcher(logFile);
+        long from = searcher.parseTimeString("2026-10-20 10:00:01", false);
+        long to = searcher.parseTimeString("2026-10-20 10:00:01", true);
+        assertEquals(BASE + 1000, from);
+        assertEquals(BASE + 1999, to);
+        searcher.setTimeRange(from, to);
+        assertEquals(asList(a, b, c), search(searcher));
+    }
+
+    @Test
+    public void testStackTraceGrouping() throws Exception {
+        File logFile = folder.newFile("app.log");
+        String error = record(BASE, "ERROR", "boom\njava.lang.RuntimeException: x\n\tat A.a(A.java:1)\n\tat B.b(B.java:2)");
+        String info = record(BASE + 1, "INFO", "next");
+        write(logFile, error + info);
+
+        assertEquals(asList(error, info), search(new LogSearcher(logFile)));
+    }
+
+    @Test
+    public void testLevelAndKeywordFilter() throws Exception {
+        File logFile = folder.newFile("app.log");
+        String debug = record(BASE, "DEBUG", "order 1");
+        String info = record(BASE + 1, "INFO", "order 2");
+        String warn = record(BASE + 2, "WARN", "user 3");
+        String error = record(BASE + 3, "ERROR", "order 4\n\tat A.a(A.java:1)");
+        write(logFile, debug + info + warn + error);
+
+        LogSearcher searcher = new LogSearcher(logFile);
+        searcher.setLevel("warn");
+        assertEquals(asList(warn, error), search(searcher));
+
+        searcher.setLevel(null);
+        searcher.setKeyword("order");
+        assertEquals(asList(debug, info, error), search(searcher));
+
+        // 关键字在堆栈中也能匹配
+        searcher.setLevel("INFO");
+        searcher.setKeyword("A.java");
+        assertEquals(asList(error), search(searcher));
+    }
+
+    @Test
+    public void testInvalidTime() throws Exception {
+        LogSearcher searcher = new LogSearcher(folder.newFile("app.log"));
+        assertEquals(-1, parse(searcher, "2026-13-99 00:00:00.000"));
+        assertEquals(-1, parse(searcher, "2026-02-29 00:00:00.000"));
+        assertEquals(-1, parse(searcher, "2026-04-31 00:00:00.000"));
+        assertEquals(-1, parse(searcher, "2026-10-20 24:00:00.000"));
+        assertEquals(-1, parse(searcher, "2026-10-20 10:60:00.000"));
+        assertEquals(-1, parse(searcher, "2026-10-20 10:00:60.000"));
+        assertEquals(-1, parse(searcher, "2026-10-20T10:00:00.000"));
+        assertEquals(InnerUtil.getDayStart(2024, 2, 29), parse(searcher, "2024-02-29 00:00:00.000"));
+        assertEquals(BASE, parse(searcher, "2026-10-20 10:00:00.000"));
+
+        try {
+            searcher.parseTimeString("2026-13-99 00:00:00", false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRecordAcrossWindow() throws Exception {
+        File logFile = folder.newFile("app.log");
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            longLine.append((char) ('a' + i % 26));
+        }
+        List<String> records = new ArrayList<String>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            String message = i % 3 == 0 ? longLine.toString() : "short " + i + "\n\tat A.a(A.java:" + i + ")";
+            String record = record(BASE + i, "INFO", message);
+            records.add(record);
+            content.append(record);
+        }
+        write(logFile, content.toString());
+
+        // 窗口比单行还小，既有跨窗口的日志，也有超过窗口的行
+        assertEquals(records, search(new LogSearcher(logFile, 64)));
+        assertEquals(records, search(new LogSearcher(logFile, 100)));
+    }
+
+    @Test
+    public void testFollowKeepsSplitRecord() throws Exception {
+        final File logFile = folder.newFile("app.log");
+        final List<String> records = Collections.synchronizedList(new ArrayList<String>());
+        Thread thread = follow(new LogSearcher(logFile), records);
+        // follow从文件末尾开始，等它先读到文件长度
+        Thread.sleep(100);
+
+        String error = record(BASE, "ERROR", "boom\nline1 of trace\n\tat frame2");
+        String info = record(BASE + 1, "INFO", "next");
+        int split = error.indexOf("frame2");
+        append(logFile, error.substring(0, split));
+        // 多个轮询周期内只有半行，不能提前输出
+        Thread.sleep(300);
+        assertTrue(records.isEmpty());
+        append(logFile, error.substring(split) + info);
+
+        waitFor(records, 2);
+        thread.interrupt();
+        thread.join();
+        assertEquals(asList(error, info), records);
+    }
+
+    @Test
+    public void testFollowSwitchesToNextDay() throws Exception {
+        long now = InnerUtil.getTimestamp();
+        File yesterday = folder.newFile("app." + InnerUtil.buildDateString(now - 24 * 3600 * 1000L));
+        File today = new File(folder.getRoot(), "app." + InnerUtil.buildDateString(now));
+        String old = record(BASE, "INFO", "old");
+        write(yesterday, old);
+
+        final List<String> records = Collections.synchronizedList(new ArrayList<String>());
+        Thread thread = follow(new LogSearcher(yesterday), records);
+        Thread.sleep(100);
+        String next = record(BASE + 1, "INFO", "new day");
+        write(today, next);
+
+        waitFor(records, 1);
+        thread.interrupt();
+        thread.join();
+        assertEquals(asList(next), records);
+    }
+
+    private static String record(long time, String level, String message) {
+        return InnerUtil.buildTimeString(time) + '\t' + level + '\t' + message + '\n';
+    }
+
+    private static void writeEntry(DataOutputStream index, long bucket, long offset) throws IOException {
+        index.writeLong(bucket);
+        index.writeLong(offset);
+    }
+
+    private static List<String> asList(String... records) {
+        List<String> list = new ArrayList<String>(records.length);
+        Collections.addAll(list, records);
+        return list;
+    }
+
+    private static long parse(LogSearcher searcher, String time) {
+        return searcher.parseTime(time.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static List<String> search(LogSearcher searcher) throws IOException {
+        final List<String> records = new ArrayList<String>();
+        long count = searcher.search(new LogSearcher.Handler() {
+            public boolean handle(long time, String level, String record) {
+                records.add(record);
+                return true;
+            }
+        });
+        assertEquals(records.size(), count);
+        return records;
+    }
+
+    private static Thread follow(final LogSearcher searcher, final List<String> records) {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    searcher.follow(new LogSearcher.Handler() {
+                        public boolean handle(long time, String level, String record) {
+                            records.add(record);
+                            return true;
+                        }
+                    }, 20);
+                } catch (InterruptedException e) {
+                    // 测试结束
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void waitFor(List<String> records, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (records.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        writeFile(file, content, false);
+    }
+
+    private static void append(File file, String content) throws IOException {
+        writeFile(file, content, true);
+    }
+
+    private static void writeFile(File file, String content, boolean append) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, append);
+        try {
+            out.write(content.getBytes(InnerUtil.CHARSET));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.createarttechnology.logger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * LoggerFactory.flush，日志目录由test/resources/logger.properties中的catalina.home指定
+ */
+public class LoggerFactoryTest {
+
+    private static final int COUNT = 500;
+
+    /**
+     * 先初始化LoggerFactory，加载logger.properties中的catalina.home
+     */
+    @BeforeClass
+    public static void setUp() {
+        LoggerFactory.getLoggers();
+        assertNotNull(System.getProperty("catalina.home"));
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        File logFile = prepareLogFile("flushTest");
+        Logger logger = Logger.getLogger("flushTest");
+        for (int i = 0; i < COUNT; i++) {
+            logger.info("line {}", i);
+        }
+
+        FlushResult result = LoggerFactory.flush();
+        assertEquals(COUNT, result.getFlushedCount());
+        assertEquals(0, result.getAbandonedCount());
+        assertEquals(0, logger.getLogQueueSize());
+        assertEquals(COUNT, countLines(logFile));
+    }
+
+    @Test
+    public void testFlushDeadline() throws Exception {
+        File logFile = prepareLogFile("deadlineTest");
+        Logger logger = Logger.getLogger("deadlineTest");
+        for (int i = 0; i < COUNT; i++) {
+            logger.info("line {}", i);
+        }
+
+        // 期限已到，一条也写不出
+        FlushResult result = LoggerFactory.flush(0, TimeUnit.MILLISECONDS);
+        assertEquals(0, result.getFlushedCount());
+        assertEquals(COUNT, result.getAbandonedCount());
+        assertEquals(COUNT, logger.getLogQueueSize());
+
+        result = LoggerFactory.flush();
+        assertEquals(COUNT, result.getFlushedCount());
+        assertEquals(0, result.getAbandonedCount());
+        assertEquals(COUNT, countLines(logFile));
+    }
+
+    @Test
+    public void testFlushSkipsIdleLogger() throws Exception {
+        File logFile = prepareLogFile("idleTest");
+        Logger.getLogger("idleTest");
+
+        LoggerFactory.flush();
+        assertFalse(logFile.exists());
+    }
+
+    /**
+     * 删除上次运行留下的文件
+     */
+    private static File prepareLogFile(String name) {
+        File logFile = new File(System.getProperty("catalina.home") + "/logs/" + name + "."
+                + InnerUtil.buildDateString(InnerUtil.getTimestamp()));
+        if (logFile.exists()) {
+            assertTrue(logFile.delete());
+        }
+        return logFile;
+    }
+
+    private static int countLines(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), InnerUtil.CHARSET));
+        try {
+            int lines = 0;
+            while (reader.readLine() != null) {
+                lines++;
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.createarttechnology.logger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * SyslogAppender对本地socket的输出
+ */
+public class SyslogAppenderTest {
+
+    private static final int TIMEOUT = 5000;
+
+    private SyslogAppender appender;
+
+    private ServerSocket serverSocket;
+
+    private DatagramSocket datagramSocket;
+
+    @After
+    public void tearDown() throws IOException {
+        if (appender != null) {
+            appender.close(System.currentTimeMillis() + TIMEOUT);
+        }
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        if (datagramSocket != null) {
+            datagramSocket.close();
+        }
+    }
+
+    @Test
+    public void testTcpFramingAndReconnect() throws Exception {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout(TIMEOUT);
+        int port = serverSocket.getLocalPort();
+        appender = new SyslogAppender("127.0.0.1", port, true, 1, 100, 10, 10);
+        appender.start();
+
+        appender.append("test", Level.INFO, "2026-10-20 00:00:00.000\tINFO\thello\n");
+        appender.append("test", Level.ERROR, "2026-10-20 00:00:00.001\tERROR\tboom\n");
+
+        Socket socket = serverSocket.accept();
+        socket.setSoTimeout(TIMEOUT);
+        InputStream in = socket.getInputStream();
+        // facility=1: INFO -> 1*8+6, ERROR -> 1*8+3
+        assertEquals("<14>1 - - test - - - 2026-10-20 00:00:00.000\tINFO\thello", readFrame(in));
+        assertEquals("<11>1 - - test - - - 2026-10-20 00:00:00.001\tERROR\tboom", readFrame(in));
+
+        // 服务端重启后重连
+        socket.close();
+        serverSocket.close();
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverSocket.setSoTimeout(200);
+
+        Socket reconnected = null;
+        long deadline = System.currentTimeMillis() + 10 * TIMEOUT;
+        int i = 0;
+        while (reconnected == null && System.currentTimeMillis() < deadline) {
+            appender.append("test", Level.WARN, "2026-10-20 00:00:01.000\tWARN\tretry " + i++ + "\n");
+            try {
+                reconnected = serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                // 对端关闭后第一次写入可能仍然成功，继续发送直到重连
+            }
+        }
+        assertNotNull("appender did not reconnect", reconnected);
+        reconnected.setSoTimeout(TIMEOUT);
+        String frame = readFrame(reconnected.getInputStream());
+        assertTrue(frame, frame.startsWith("<12>1 - - test - - - 2026-10-20 00:00:01.000\tWARN\tretry "));
+        reconnected.close();
+    }
+
+    @Test
+    public void testUdp() throws Exception {
+        datagramSocket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        datagramSocket.setSoTimeout(TIMEOUT);
+        appender = new SyslogAppender("127.0.0.1", datagramSocket.getLocalPort(), false, 1, 100, 10, 10);
+        appender.start();
+
+        StringBuilder sb = new StringBuilder(100000);
+        for (int i = 0; i < 100000; i++) {
+            sb.append('x');
+        }
+        appender.append("test", Level.ERROR, "2026-10-20 00:00:00.000\tERROR\t" + sb + "\n");
+        appender.append("test", Level.INFO, "2026-10-20 00:00:00.001\tINFO\thello\n");
+
+        // 超长消息被截断，不影响同批的下一条
+        String first = receive();
+        assertEquals(SyslogAppender.MAX_DATAGRAM_SIZE, first.length());
+        assertTrue(first.startsWith("<11>1 - - test - - - 2026-10-20 00:00:00.000\tERROR\txxx"));
+        assertEquals("<14>1 - - test - - - 2026-10-20 00:00:00.001\tINFO\thello", receive());
+        assertEquals(0, appender.getDroppedCount());
+    }
+
+    /**
+     * RFC 6587 octet-counting: MSG-LEN SP SYSLOG-MSG
+     */
+    private static String readFrame(InputStream in) throws IOException {
+        int length = 0;
+        int b;
+        while ((b = in.read()) != ' ') {
+            assertTrue("unexpected end of stream", b >= '0' && b <= '9');
+            length = length * 10 + (b - '0');
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        for (int i = 0; i < length; i++) {
+            b = in.read();
+            assertTrue("unexpected end of stream", b >= 0);
+            out.write(b);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private String receive() throws IOException {
+        byte[] buffer = new byte[65536];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        datagramSocket.receive(packet);
+        return new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+    }
+}